@@ -18,6 +18,7 @@ import android.content.res.CustomTheme;
 import android.content.res.Resources;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.util.Log;
 
 /**
@@ -48,6 +49,16 @@ public class ChangeThemeHelper {
      */
     private String mApplyingName;
 
+    /**
+     * Whether the change requested by {@link #beginChange} was style only,
+     * when it was requested, and when its completion was first observed. Used
+     * only to report how long each kind of change took to complete, which is
+     * enabled at runtime with <code>setprop log.tag.ThemeChooser VERBOSE</code>.
+     */
+    private boolean mChangeStyleOnly;
+    private long mChangeStartTime;
+    private long mChangeEndTime;
+
     /**
      * Used to impose a short delay between theme change "completion" and the
      * actual finish() call to work around imprecisions inherent to detecing
@@ -80,12 +91,22 @@ public class ChangeThemeHelper {
         CustomTheme newTheme = newConfig.customTheme;
         if (newTheme != null &&
                 (mCurrentTheme == null || !mCurrentTheme.equals(newTheme))) {
+            markChangeComplete();
             mHandler.scheduleFinish("Theme config change, closing!");
             finishing = true;
         }
         return finishing;
     }
 
+    public void dispatchOnDestroy() {
+        /*
+         * Pending finish and timeout messages reference this helper and so
+         * the activity; drop them so a destroyed activity isn't held until
+         * they fire.
+         */
+        mHandler.cancel();
+    }
+
     public void dispatchOnPause() {
         /*
          * If the user leaves this screen, just remove the progress dialog and
@@ -93,7 +114,9 @@ public class ChangeThemeHelper {
          * while)
          */
         mContext.removeDialog(mDialogId);
+        long guard = MainThreadGuard.begin();
         mContext.unregisterReceiver(mThemeChangedReceiver);
+        MainThreadGuard.end(guard, "Context.unregisterReceiver");
     }
 
     public void dispatchOnResume() {
@@ -115,16 +138,41 @@ public class ChangeThemeHelper {
         } catch (MalformedMimeTypeException e) {
             throw new RuntimeException(e);
         }
+        long guard = MainThreadGuard.begin();
         mContext.registerReceiver(mThemeChangedReceiver, filter);
+        MainThreadGuard.end(guard, "Context.registerReceiver");
     }
 
     private final BroadcastReceiver mThemeChangedReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
+            markChangeComplete();
             mHandler.scheduleFinish("Theme change 'complete', closing!");
         }
     };
 
+    private void markChangeComplete() {
+        if (mChangeStartTime != 0 && mChangeEndTime == 0) {
+            mChangeEndTime = SystemClock.uptimeMillis();
+        }
+    }
+
+    private void logChangeTime() {
+        if (mChangeStartTime == 0) {
+            return;
+        }
+        String kind = mChangeStyleOnly ? "style" : "theme";
+        if (mChangeEndTime != 0) {
+            Log.v(Constants.TAG, "Applied " + kind + " change in " +
+                    (mChangeEndTime - mChangeStartTime) + " ms");
+        } else {
+            Log.v(Constants.TAG, "Failed to observe " + kind + " change after " +
+                    (SystemClock.uptimeMillis() - mChangeStartTime) + " ms");
+        }
+        mChangeStartTime = 0;
+        mChangeEndTime = 0;
+    }
+
     private class ChangeHandler extends Handler {
         private static final int MSG_FINISH_SCHEDULE = 0;
         private static final int MSG_FINISH_EXECUTE = 1;
@@ -170,6 +218,11 @@ public class ChangeThemeHelper {
             sendMessageDelayed(obtainMessage(MSG_FINISH_SCHEDULE, message), SCHEDULE_DELAY);
         }
 
+        public void cancel() {
+            removeMessages(MSG_FINISH_SCHEDULE);
+            removeMessages(MSG_FINISH_EXECUTE);
+        }
+
         /**
          * Schedule a timeout that will invoke {@link #MSG_FINISH_EXECUTE} after
          * {@link #TIMEOUT_DELAY} inactivity. This is a catch-all to gracefully
@@ -186,6 +239,7 @@ public class ChangeThemeHelper {
             if (Constants.DEBUG) {
                 Log.i(Constants.TAG, message);
             }
+            logChangeTime();
 
             /*
              * Will dismiss if present, but doesn't require that it is currently
@@ -239,17 +293,37 @@ public class ChangeThemeHelper {
             res = context.getResources();
         } else {
             PackageManager pm = context.getPackageManager();
+            long guard = MainThreadGuard.begin();
             try {
                 res = pm.getResourcesForApplication(resourcePackageName);
             } catch (NameNotFoundException e) {
+                MainThreadGuard.cancel(guard);
                 throw new RuntimeException(e);
             }
+            MainThreadGuard.end(guard, "PackageManager.getResourcesForApplication");
         }
         return res;
     }
 
+    /**
+     * Equivalent to <code>beginChange(applyingName, false)</code>, for the
+     * other choosers which compile in this helper.
+     */
     public void beginChange(String applyingName) {
+        beginChange(applyingName, false);
+    }
+
+    /**
+     * @param applyingName - Name of the theme being applied, for display
+     * @param styleOnly - True if only a style change was requested, used
+     *            when reporting the time taken to apply it
+     */
+    public void beginChange(String applyingName, boolean styleOnly) {
         mApplyingName = applyingName;
+        mChangeStyleOnly = styleOnly;
+        mChangeStartTime = Log.isLoggable(Constants.TAG, Log.VERBOSE) ?
+                SystemClock.uptimeMillis() : 0;
+        mChangeEndTime = 0;
         mContext.showDialog(mDialogId);
 
         /*
@@ -0,0 +1,117 @@
+package com.tmobile.themechooser;
+
+import com.tmobile.themes.provider.ThemeItem;
+
+import android.content.Context;
+import android.media.RingtoneManager;
+import android.net.Uri;
+
+/**
+ * Decides whether applying a theme would affect any of the components that
+ * only a full theme change commits: the wallpaper, ringtone, and notification
+ * ringtone. When none would be affected, the chooser sends the cheaper style
+ * change instead.
+ * <p>
+ * Whenever the current state cannot be established with confidence, a change
+ * is assumed so that the full theme change is performed.
+ */
+public class ComponentChangeDetector {
+    /**
+     * The components of a single theme, as listed by the Themes provider.
+     */
+    public static class Components {
+        public final String packageName;
+        public final String themeId;
+        public final Uri wallpaper;
+        public final Uri ringtone;
+        public final Uri notificationRingtone;
+
+        public Components(String packageName, String themeId, Uri wallpaper, Uri ringtone,
+                Uri notificationRingtone) {
+            this.packageName = packageName;
+            this.themeId = themeId;
+            this.wallpaper = wallpaper;
+            this.ringtone = ringtone;
+            this.notificationRingtone = notificationRingtone;
+        }
+
+        /**
+         * Read the components of the theme at the item's current cursor
+         * position. The item may be repositioned freely afterwards.
+         */
+        public static Components fromItem(Context context, ThemeItem item) {
+            return new Components(item.getPackageName(), item.getThemeId(),
+                    item.getWallpaperUri(context), item.getRingtoneUri(context),
+                    item.getNotificationRingtoneUri(context));
+        }
+
+        boolean isTheme(String packageName, String themeId) {
+            return packageName != null && packageName.equals(this.packageName) &&
+                    themeId != null && themeId.equals(this.themeId);
+        }
+    }
+
+    private final Context mContext;
+
+    public ComponentChangeDetector(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * @param target - Theme about to be applied
+     * @param current - Theme marked as applied in the chooser, or null if
+     *            there is none
+     * @param appliedPackageName - Package of the theme in the current
+     *            configuration, or null if operating off the booted theme
+     * @param appliedThemeId - Id of the theme in the current configuration,
+     *            or null if operating off the booted theme
+     * @return true if the full theme change is required
+     */
+    public boolean hasChanges(Components target, Components current,
+            String appliedPackageName, String appliedThemeId) {
+        if (current == null || !current.isTheme(appliedPackageName, appliedThemeId)) {
+            return true;
+        }
+
+        /* Explicitly re-applying the current theme always resets everything. */
+        if (target.isTheme(current.packageName, current.themeId)) {
+            return true;
+        }
+
+        /*
+         * The wallpaper actually set can't be checked against the theme's, as
+         * the user may have changed it since, so any theme which touches the
+         * wallpaper takes the full path.
+         */
+        if (target.wallpaper != null || current.wallpaper != null) {
+            return true;
+        }
+
+        return isRingtoneChanged(target.ringtone, current.ringtone,
+                RingtoneManager.TYPE_RINGTONE) ||
+                isRingtoneChanged(target.notificationRingtone, current.notificationRingtone,
+                RingtoneManager.TYPE_NOTIFICATION);
+    }
+
+    private boolean isRingtoneChanged(Uri target, Uri current, int type) {
+        if (target == null && current == null) {
+            return false;
+        }
+        if (target == null || !target.equals(current)) {
+            return true;
+        }
+        /* The user may have picked a different ringtone since the theme was applied. */
+        return !target.equals(getDefaultRingtoneUri(type));
+    }
+
+    /**
+     * @param type - One of the RingtoneManager ringtone types
+     * @return the ringtone currently set for <code>type</code> in settings
+     */
+    protected Uri getDefaultRingtoneUri(int type) {
+        long guard = MainThreadGuard.begin();
+        Uri ringtone = RingtoneManager.getActualDefaultRingtoneUri(mContext, type);
+        MainThreadGuard.end(guard, "RingtoneManager.getActualDefaultRingtoneUri");
+        return ringtone;
+    }
+}
@@ -3,4 +3,11 @@ package com.tmobile.themechooser;
 public interface Constants {
     public static final boolean DEBUG = true;
     public static final String TAG = "ThemeChooser";
+
+    /**
+     * Enables {@link MainThreadGuard} detection of disk, provider, and binder
+     * operations performed on the main thread from startup. The guard may
+     * also be enabled at runtime with {@link MainThreadGuard#setEnabled}.
+     */
+    public static final boolean GUARD_MAIN_THREAD = false;
 }
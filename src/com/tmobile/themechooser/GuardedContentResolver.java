@@ -0,0 +1,42 @@
+package com.tmobile.themechooser;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.IContentProvider;
+import android.os.SystemClock;
+
+/**
+ * ContentResolver which reports every provider acquisition to
+ * {@link MainThreadGuard} before handing back the provider acquired by the
+ * real resolver. Queries, file opens, and type lookups all acquire a
+ * provider, so provider access anywhere in the chooser is detected without
+ * having to bracket it.
+ */
+public class GuardedContentResolver extends ContentResolver {
+    private final ContentResolver mBase;
+
+    public GuardedContentResolver(Context context, ContentResolver base) {
+        super(context);
+        mBase = base;
+    }
+
+    @Override
+    protected IContentProvider acquireProvider(Context context, String name) {
+        long startTime = SystemClock.uptimeMillis();
+        IContentProvider provider = mBase.acquireProvider(name);
+        try {
+            MainThreadGuard.onProviderAcquired(name, SystemClock.uptimeMillis() - startTime);
+        } catch (RuntimeException e) {
+            if (provider != null) {
+                mBase.releaseProvider(provider);
+            }
+            throw e;
+        }
+        return provider;
+    }
+
+    @Override
+    public boolean releaseProvider(IContentProvider provider) {
+        return mBase.releaseProvider(provider);
+    }
+}
@@ -0,0 +1,54 @@
+package com.tmobile.themechooser;
+
+import java.util.Arrays;
+
+/**
+ * Collects latency samples, in milliseconds, and reports nearest-rank
+ * percentiles over them. Used to profile preview binding in the chooser and
+ * by the soak tests which drive it.
+ */
+public class LatencyStats {
+    private long[] mSamples = new long[64];
+    private int mCount;
+
+    public void add(long sample) {
+        if (mCount == mSamples.length) {
+            long[] grown = new long[mCount * 2];
+            System.arraycopy(mSamples, 0, grown, 0, mCount);
+            mSamples = grown;
+        }
+        mSamples[mCount++] = sample;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @param percentile - Value between 0 and 100
+     * @return the smallest sample such that at least <code>percentile</code>
+     *         percent of samples are less than or equal to it, or 0 if no
+     *         samples have been collected
+     */
+    public long getPercentile(int percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        long[] sorted = new long[mCount];
+        System.arraycopy(mSamples, 0, sorted, 0, mCount);
+        Arrays.sort(sorted);
+        int rank = (int)Math.ceil(percentile / 100.0 * mCount);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    public long getMax() {
+        return getPercentile(100);
+    }
+
+    @Override
+    public String toString() {
+        return "n=" + mCount + ", p50=" + getPercentile(50) + " ms, p90=" +
+                getPercentile(90) + " ms, p99=" + getPercentile(99) + " ms, max=" +
+                getMax() + " ms";
+    }
+}
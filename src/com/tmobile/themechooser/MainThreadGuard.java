@@ -0,0 +1,318 @@
+package com.tmobile.themechooser;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Opt-in debug aid which detects disk reads, provider queries, and binder
+ * calls made from the main thread by the chooser.
+ * <p>
+ * Detection is automatic where the platform allows it: while enabled, every
+ * provider acquisition made through the chooser's {@link GuardedContentResolver}
+ * is recorded, and on platforms with StrictMode (API 9 and later) its disk
+ * and network detection is switched on for the main thread, logging under
+ * the StrictMode tag. Operations which cannot be observed that way, such as
+ * PackageManager and broadcast calls, are bracketed explicitly with
+ * {@link #begin()} and {@link #end(long, String)}. Provider access inside a
+ * bracket is attributed to the bracket rather than recorded twice.
+ * <p>
+ * The guard is enabled at build time by {@link Constants#GUARD_MAIN_THREAD}
+ * or at runtime with {@link #setEnabled(boolean)}. Tests may additionally
+ * call {@link #setFailOnViolation(boolean)} to have new violations throw.
+ * Operations known to remain on the main thread are listed in
+ * {@link #KNOWN_OPERATIONS}; they are neither traced nor recorded, so the
+ * guard adds little overhead to them.
+ */
+public class MainThreadGuard {
+    private static final String TAG = MainThreadGuard.class.getSimpleName();
+
+    private static final long NOT_GUARDED = -1;
+
+    /** Recording stops here, so long runs can't grow the heap without bound. */
+    private static final int MAX_VIOLATIONS = 100;
+
+    /**
+     * Bracketed operations which cannot yet move off the main thread.
+     */
+    private static final String[] KNOWN_OPERATIONS = new String[] {
+        /*
+         * ThemeAdapter queries the catalog, and the applied theme for
+         * marking, as it is constructed; moving these needs an asynchronous
+         * adapter.
+         */
+        "ThemeAdapter catalog query",
+        "ThemeAdapter.setUseAutomaticMarking",
+        /* AdapterView requires getView, and so preview decoding, to be synchronous. */
+        "decode theme preview",
+        /* AdapterView requires getItem to be synchronous. */
+        "ThemeAdapter.getDAOItem",
+        /*
+         * These read the adapter's shared cursor, which bindView also
+         * repositions, so they must stay on the main thread.
+         */
+        "ThemeItem.hasHostDensity",
+        "ThemeItem.hasThemePackageScope",
+        "ThemeAdapter.getDAOItem (marked theme)",
+        /*
+         * Read at most twice per apply, only when neither theme sets a
+         * wallpaper; the decision must be made before the change is sent.
+         */
+        "RingtoneManager.getActualDefaultRingtoneUri",
+        /* Activity.onCreateDialog must return the dialog synchronously. */
+        "PackageManager.getResourcesForApplication",
+        /* Receivers are tied to onResume/onPause, which run on the main thread. */
+        "Context.registerReceiver",
+        "Context.unregisterReceiver",
+        /* The change request must follow the progress dialog being shown. */
+        "Themes.changeStyle",
+        "Themes.changeTheme",
+    };
+
+    private static final List<Violation> sViolations = new ArrayList<Violation>();
+    private static final Set<String> sAllowed =
+            new HashSet<String>(Arrays.asList(KNOWN_OPERATIONS));
+    private static volatile boolean sEnabled;
+    private static boolean sFailOnViolation;
+
+    /**
+     * Number of brackets open on the main thread, the only thread which
+     * touches it.
+     */
+    private static int sDepth;
+
+    static {
+        if (Constants.GUARD_MAIN_THREAD) {
+            setEnabled(true);
+        }
+    }
+
+    private MainThreadGuard() {}
+
+    /**
+     * A guarded operation observed on the main thread.
+     */
+    public static class Violation {
+        public final String operation;
+        public final StackTraceElement callSite;
+        public final long duration;
+
+        Violation(String operation, StackTraceElement callSite, long duration) {
+            this.operation = operation;
+            this.callSite = callSite;
+            this.duration = duration;
+        }
+
+        /**
+         * @return "Class.method: operation", where Class is the simple name of
+         *         the top-level class containing the call site
+         */
+        public String getKey() {
+            if (callSite == null) {
+                return operation;
+            }
+            String className = callSite.getClassName();
+            className = className.substring(className.lastIndexOf('.') + 1);
+            int inner = className.indexOf('$');
+            if (inner >= 0) {
+                className = className.substring(0, inner);
+            }
+            return className + "." + callSite.getMethodName() + ": " + operation;
+        }
+
+        @Override
+        public String toString() {
+            return operation + " on main thread at " + callSite + " (" + duration + " ms)";
+        }
+    }
+
+    private static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    /**
+     * Mark the start of a guarded operation.
+     *
+     * @return token to be passed to {@link #end(long, String)} or
+     *         {@link #cancel(long)}
+     */
+    public static long begin() {
+        if (sEnabled && isMainThread()) {
+            sDepth++;
+            return SystemClock.uptimeMillis();
+        } else {
+            return NOT_GUARDED;
+        }
+    }
+
+    /**
+     * Mark the end of a guarded operation, recording a violation if it was
+     * started on the main thread and is not a known operation.
+     *
+     * @param token - Value returned by the matching {@link #begin()} call
+     * @param operation - Short description of the disk, provider, or binder
+     *            operation performed
+     * @throws IllegalStateException if failing on violations was requested
+     */
+    public static void end(long token, String operation) {
+        if (token == NOT_GUARDED) {
+            return;
+        }
+        sDepth--;
+        if (isAllowed(operation)) {
+            return;
+        }
+        StackTraceElement[] trace = new Throwable().getStackTrace();
+        record(operation, (trace.length > 1) ? trace[1] : null,
+                SystemClock.uptimeMillis() - token);
+    }
+
+    /**
+     * Close a bracket without recording it, for operations which are failing
+     * with an exception of their own.
+     */
+    public static void cancel(long token) {
+        if (token != NOT_GUARDED) {
+            sDepth--;
+        }
+    }
+
+    /**
+     * Called by {@link GuardedContentResolver} for every provider acquired.
+     * Acquisitions on the main thread outside of any bracket are recorded
+     * against the innermost chooser frame which caused them.
+     */
+    static void onProviderAcquired(String authority, long duration) {
+        if (!sEnabled || !isMainThread() || sDepth > 0) {
+            return;
+        }
+        String guardPackage = MainThreadGuard.class.getPackage().getName() + ".";
+        StackTraceElement callSite = null;
+        for (StackTraceElement frame : new Throwable().getStackTrace()) {
+            String className = frame.getClassName();
+            if (className.startsWith(guardPackage) &&
+                    !className.equals(MainThreadGuard.class.getName()) &&
+                    !className.equals(GuardedContentResolver.class.getName())) {
+                callSite = frame;
+                break;
+            }
+        }
+        record("ContentResolver " + authority, callSite, duration);
+    }
+
+    private static boolean isAllowed(String operation) {
+        synchronized (sViolations) {
+            return sAllowed.contains(operation);
+        }
+    }
+
+    private static void record(String operation, StackTraceElement callSite, long duration) {
+        Violation violation = new Violation(operation, callSite, duration);
+        Log.w(TAG, violation.toString());
+
+        boolean fail;
+        synchronized (sViolations) {
+            if (sViolations.size() < MAX_VIOLATIONS) {
+                sViolations.add(violation);
+            }
+            fail = sFailOnViolation;
+        }
+        if (fail) {
+            throw new IllegalStateException("New violation: " + violation);
+        }
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Enable or disable the guard. StrictMode, where available, is updated on
+     * the main thread, immediately if called from it.
+     */
+    public static void setEnabled(final boolean enabled) {
+        sEnabled = enabled;
+        if (isMainThread()) {
+            setStrictMode(enabled);
+        } else {
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+                public void run() {
+                    setStrictMode(enabled);
+                }
+            });
+        }
+    }
+
+    /**
+     * StrictMode is reached by reflection since this package builds against
+     * platforms which predate it. It only logs: it can't tell known
+     * operations from new ones, so it must not fail tests.
+     */
+    private static void setStrictMode(boolean enabled) {
+        if (Build.VERSION.SDK_INT < 9) {
+            return;
+        }
+        try {
+            Class<?> strictMode = Class.forName("android.os.StrictMode");
+            Class<?> policyClass = Class.forName("android.os.StrictMode$ThreadPolicy");
+            Object policy;
+            if (enabled) {
+                Class<?> builderClass =
+                        Class.forName("android.os.StrictMode$ThreadPolicy$Builder");
+                Object builder = builderClass.newInstance();
+                for (String detect : new String[] {
+                        "detectDiskReads", "detectDiskWrites", "detectNetwork", "penaltyLog" }) {
+                    builder = builderClass.getMethod(detect).invoke(builder);
+                }
+                policy = builderClass.getMethod("build").invoke(builder);
+            } else {
+                policy = policyClass.getField("LAX").get(null);
+            }
+            Method setThreadPolicy = strictMode.getMethod("setThreadPolicy", policyClass);
+            setThreadPolicy.invoke(null, policy);
+        } catch (Exception e) {
+            Log.w(TAG, "Unable to configure StrictMode", e);
+        }
+    }
+
+    public static void setFailOnViolation(boolean fail) {
+        synchronized (sViolations) {
+            sFailOnViolation = fail;
+        }
+    }
+
+    /**
+     * Add an operation to those known to remain on the main thread, which are
+     * never recorded.
+     */
+    public static void allow(String operation) {
+        synchronized (sViolations) {
+            sAllowed.add(operation);
+        }
+    }
+
+    /**
+     * @return a snapshot of the violations recorded since the last call to
+     *         {@link #clearViolations()}
+     */
+    public static List<Violation> getViolations() {
+        synchronized (sViolations) {
+            return new ArrayList<Violation>(sViolations);
+        }
+    }
+
+    public static void clearViolations() {
+        synchronized (sViolations) {
+            sViolations.clear();
+        }
+    }
+}
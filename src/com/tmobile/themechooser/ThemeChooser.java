@@ -16,6 +16,7 @@
 
 package com.tmobile.themechooser;
 
+import com.tmobile.themechooser.ComponentChangeDetector.Components;
 import com.tmobile.themes.ThemeManager;
 import com.tmobile.themes.provider.ThemeItem;
 import com.tmobile.themes.provider.Themes;
@@ -24,17 +25,21 @@ import com.tmobile.themes.widget.ThemeAdapter;
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.Dialog;
+import android.content.ContentResolver;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.res.Configuration;
+import android.content.res.CustomTheme;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.view.View.OnClickListener;
 import android.widget.AdapterView;
 import android.widget.Button;
@@ -52,6 +57,15 @@ public class ThemeChooser extends Activity {
 
     private ThemeChooserAdapter mAdapter;
 
+    /**
+     * Startup and bind timings are reported only when enabled at runtime with
+     * <code>setprop log.tag.ThemeChooser VERBOSE</code>.
+     */
+    private boolean mProfiling;
+    private long mStartTime;
+
+    private ContentResolver mGuardedResolver;
+
     private static final int DIALOG_APPLY = 0;
     private static final int DIALOG_MISSING_HOST_DENSITY = 1;
     private static final int DIALOG_MISSING_THEME_PACKAGE_SCOPE = 2;
@@ -60,15 +74,65 @@ public class ThemeChooser extends Activity {
     @Override
     public void onCreate(Bundle icicle) {
         super.onCreate(icicle);
+        mProfiling = Log.isLoggable(Constants.TAG, Log.VERBOSE);
+        mStartTime = SystemClock.uptimeMillis();
 
         Uri currentTheme = getIntent().getParcelableExtra(ThemeManager.EXTRA_THEME_EXISTING_URI);
-        mAdapter = new ThemeChooserAdapter(this);
+        long guard = MainThreadGuard.begin();
+        mAdapter = new ThemeChooserAdapter(this, mProfiling ? new LatencyStats() : null);
+        MainThreadGuard.end(guard, "ThemeAdapter catalog query");
+        guard = MainThreadGuard.begin();
         mAdapter.setUseAutomaticMarking(true, currentTheme);
+        MainThreadGuard.end(guard, "ThemeAdapter.setUseAutomaticMarking");
 
         inflateActivity();
 
         mGallery.setSelection(mAdapter.getMarkedPosition());
         mChangeHelper.dispatchOnCreate();
+
+        if (mProfiling) {
+            /*
+             * Startup is considered complete once the gallery has been laid
+             * out and its first previews bound, just before it is drawn.
+             */
+            mGallery.getViewTreeObserver().addOnPreDrawListener(mFirstDraw);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        LatencyStats bindStats = mAdapter.getBindStats();
+        if (bindStats != null && bindStats.getCount() > 0) {
+            Log.v(TAG, "Preview bind latency: " + bindStats);
+        }
+        mChangeHelper.dispatchOnDestroy();
+        super.onDestroy();
+    }
+
+    private final ViewTreeObserver.OnPreDrawListener mFirstDraw =
+            new ViewTreeObserver.OnPreDrawListener() {
+        public boolean onPreDraw() {
+            mGallery.getViewTreeObserver().removeOnPreDrawListener(this);
+            Log.v(TAG, "Started with " + mAdapter.getCount() + " themes in " +
+                    (SystemClock.uptimeMillis() - mStartTime) + " ms");
+            return true;
+        }
+    };
+
+    /**
+     * While {@link MainThreadGuard} is enabled, provider access by the chooser
+     * and its views is routed through a {@link GuardedContentResolver}.
+     */
+    @Override
+    public ContentResolver getContentResolver() {
+        ContentResolver resolver = super.getContentResolver();
+        if (!MainThreadGuard.isEnabled()) {
+            return resolver;
+        }
+        if (mGuardedResolver == null) {
+            mGuardedResolver = new GuardedContentResolver(this, resolver);
+        }
+        return mGuardedResolver;
     }
 
     private void inflateActivity() {
@@ -179,11 +243,17 @@ public class ThemeChooser extends Activity {
         public void onClick(View v) {
             int selectedPos = mGallery.getSelectedItemPosition();
             ThemeItem item = (ThemeItem)mGallery.getItemAtPosition(selectedPos);
-            if (!item.hasHostDensity()) {
+            long guard = MainThreadGuard.begin();
+            boolean hasHostDensity = item.hasHostDensity();
+            MainThreadGuard.end(guard, "ThemeItem.hasHostDensity");
+            if (!hasHostDensity) {
                 showDialog(DIALOG_MISSING_HOST_DENSITY);
                 return;
             }
-            if (!item.hasThemePackageScope()) {
+            guard = MainThreadGuard.begin();
+            boolean hasThemePackageScope = item.hasThemePackageScope();
+            MainThreadGuard.end(guard, "ThemeItem.hasThemePackageScope");
+            if (!hasThemePackageScope) {
                 showDialog(DIALOG_MISSING_THEME_PACKAGE_SCOPE);
                 return;
             }
@@ -199,18 +269,62 @@ public class ThemeChooser extends Activity {
 
     private void doApply(ThemeItem item) {
         Uri uri = item.getUri(ThemeChooser.this);
-        Log.i(TAG, "Sending request to change to '" + item.getName() + "' (" + uri + ")");
-        mChangeHelper.beginChange(item.getName());
-        if (getResources().getBoolean(R.bool.config_change_style_only)) {
+        String name = item.getName();
+        Log.i(TAG, "Sending request to change to '" + name + "' (" + uri + ")");
+
+        boolean styleOnly = getResources().getBoolean(R.bool.config_change_style_only);
+        if (!styleOnly && getResources().getBoolean(R.bool.config_skip_unchanged_components)) {
+            styleOnly = !hasComponentChanges(Components.fromItem(this, item));
+        }
+
+        mChangeHelper.beginChange(name, styleOnly);
+        long guard = MainThreadGuard.begin();
+        if (styleOnly) {
             Themes.changeStyle(ThemeChooser.this, uri);
+            MainThreadGuard.end(guard, "Themes.changeStyle");
         } else {
             Themes.changeTheme(ThemeChooser.this, uri);
+            MainThreadGuard.end(guard, "Themes.changeTheme");
+        }
+    }
+
+    /**
+     * Compare the target theme with the marked (applied) theme and the current
+     * configuration. This repositions the adapter's shared cursor, so any
+     * ThemeItem obtained earlier is invalid on return.
+     */
+    private boolean hasComponentChanges(Components target) {
+        Components current = null;
+        int markedPos = mAdapter.getMarkedPosition();
+        if (markedPos >= 0) {
+            long guard = MainThreadGuard.begin();
+            ThemeItem marked = mAdapter.getDAOItem(markedPos);
+            MainThreadGuard.end(guard, "ThemeAdapter.getDAOItem (marked theme)");
+            if (marked != null) {
+                current = Components.fromItem(this, marked);
+            }
         }
+
+        CustomTheme applied = getResources().getConfiguration().customTheme;
+        return new ComponentChangeDetector(this).hasChanges(target, current,
+                (applied != null) ? applied.getThemePackageName() : null,
+                (applied != null) ? applied.getThemeId() : null);
     }
 
     private static class ThemeChooserAdapter extends ThemeAdapter {
-        public ThemeChooserAdapter(Activity context) {
+        /**
+         * Bind timings, collected only when profiling, to gauge how preview
+         * decoding scales with the size of the catalog. May be null.
+         */
+        private final LatencyStats mBindStats;
+
+        public ThemeChooserAdapter(Activity context, LatencyStats bindStats) {
             super(context);
+            mBindStats = bindStats;
+        }
+
+        public LatencyStats getBindStats() {
+            return mBindStats;
         }
 
         @Override
@@ -222,15 +336,25 @@ public class ThemeChooser extends Activity {
 
         @Override
         public void bindView(View view, Context context, Cursor cursor) {
+            long startTime = SystemClock.uptimeMillis();
             ThemeItem themeItem = mDAOItem;
             ViewHolder holder = (ViewHolder)view.getTag();
             int orientation = context.getResources().getConfiguration().orientation;
+            long guard = MainThreadGuard.begin();
             holder.preview.setImageURI(themeItem.getPreviewUri(orientation));
+            MainThreadGuard.end(guard, "decode theme preview");
+
+            if (mBindStats != null) {
+                mBindStats.add(SystemClock.uptimeMillis() - startTime);
+            }
         }
 
         @Override
         public Object getItem(int position) {
-            return getDAOItem(position);
+            long guard = MainThreadGuard.begin();
+            ThemeItem item = getDAOItem(position);
+            MainThreadGuard.end(guard, "ThemeAdapter.getDAOItem");
+            return item;
         }
     }
 
@@ -0,0 +1,296 @@
+package com.tmobile.themechooser.tests;
+
+import com.tmobile.themechooser.LatencyStats;
+import com.tmobile.themechooser.MainThreadGuard;
+import com.tmobile.themechooser.R;
+
+import android.content.Intent;
+import android.content.res.Configuration;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.test.ActivityUnitTestCase;
+import android.test.UiThreadTest;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.widget.Gallery;
+import android.widget.SpinnerAdapter;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Load and soak test for the chooser against synthetic catalogs of 100 to
+ * 5,000 themes served by {@link SyntheticThemeProvider}. Each run launches
+ * the chooser, sweeps the gallery across the whole catalog several times,
+ * rotates repeatedly through onConfigurationChanged, and performs repeated
+ * apply cycles, then checks that no Gallery or adapter outlives the
+ * activity.
+ * <p>
+ * Startup time, gallery step latency percentiles (a selection change plus
+ * the layout which binds newly visible previews), apply latency, peak heap
+ * and leak counts are logged under the ThemeChooserSoak tag and compared
+ * against baselines as described in {@link SoakReport}.
+ * <p>
+ * A separate, unmeasured pass runs the same scenario with
+ * {@link MainThreadGuard} failing on any main-thread I/O or IPC beyond the
+ * known operations, so the guard's own overhead never skews the metrics.
+ */
+public class CatalogSoakTest extends ActivityUnitTestCase<HeadlessThemeChooser> {
+    private static final int SCREEN_SHORT_SIDE = 480;
+    private static final int SCREEN_LONG_SIDE = 800;
+
+    private static final int FLINGS = 4;
+    private static final int MAX_STEPS_PER_FLING = 500;
+    private static final int ROTATIONS = 10;
+    private static final int APPLY_CYCLES = 20;
+
+    private long mPeakHeapKb;
+    private Configuration mOriginalConfig;
+
+    public CatalogSoakTest() {
+        super(HeadlessThemeChooser.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mOriginalConfig = new Configuration(
+                getInstrumentation().getTargetContext().getResources().getConfiguration());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        MainThreadGuard.setFailOnViolation(false);
+        MainThreadGuard.setEnabled(false);
+        MainThreadGuard.clearViolations();
+        getInstrumentation().getTargetContext().getResources()
+                .updateConfiguration(mOriginalConfig, null);
+        super.tearDown();
+    }
+
+    @UiThreadTest
+    public void testSmallCatalog() throws Exception {
+        runSoak(100, 160, 240);
+    }
+
+    @LargeTest
+    @UiThreadTest
+    public void testMediumCatalog() throws Exception {
+        runSoak(1000, 240, 360);
+    }
+
+    @LargeTest
+    @UiThreadTest
+    public void testLargeCatalog() throws Exception {
+        runSoak(5000, 320, 480);
+    }
+
+    @UiThreadTest
+    public void testNoNewMainThreadViolations() throws Exception {
+        MainThreadGuard.clearViolations();
+        MainThreadGuard.setEnabled(true);
+        MainThreadGuard.setFailOnViolation(true);
+
+        drive(new SoakReport(100), 100, 160, 240);
+
+        assertEquals(0, MainThreadGuard.getViolations().size());
+    }
+
+    private void runSoak(int catalogSize, int previewWidth, int previewHeight)
+            throws Exception {
+        SoakReport report = new SoakReport(catalogSize);
+        mPeakHeapKb = 0;
+
+        LeakProbe probe = drive(report, catalogSize, previewWidth, previewHeight);
+
+        forceGc();
+        report.put("leaked_galleries", probe.countLiveGalleries());
+        report.put("leaked_adapters", probe.countLiveAdapters());
+        report.put("peak_heap_kb", mPeakHeapKb);
+
+        List<String> regressions = report.compareWithBaselines(
+                getInstrumentation().getContext(), getInstrumentation().getTargetContext());
+        assertTrue(regressions.toString(), regressions.isEmpty());
+    }
+
+    /**
+     * Run the chooser through launch, flings, rotations and apply cycles, then
+     * destroy it. Only weak references escape, so that whatever the chooser
+     * leaks can be detected by the caller.
+     */
+    private LeakProbe drive(SoakReport report, int catalogSize, int previewWidth,
+            int previewHeight) {
+        SyntheticThemeProvider provider =
+                new SyntheticThemeProvider(catalogSize, previewWidth, previewHeight);
+        HarnessContext context =
+                new HarnessContext(getInstrumentation().getTargetContext(), provider);
+        setActivityContext(context);
+        LeakProbe probe = new LeakProbe();
+
+        /* Launch, up to the first layout which binds the visible previews. */
+        long startTime = SystemClock.uptimeMillis();
+        HeadlessThemeChooser activity = startActivity(new Intent(Intent.ACTION_MAIN), null, null);
+        getInstrumentation().callActivityOnStart(activity);
+        getInstrumentation().callActivityOnResume(activity);
+        boolean portrait = true;
+        detachSelectionListener(activity);
+        layout(activity, portrait);
+        report.put("startup_ms", SystemClock.uptimeMillis() - startTime);
+        sampleHeap();
+
+        Gallery gallery = (Gallery)activity.findViewById(R.id.gallery);
+        assertEquals(catalogSize, gallery.getCount());
+        probe.add(gallery.getAdapter());
+
+        /*
+         * Long flings, alternating direction, each sweeping the whole catalog
+         * with a stride that bounds the number of steps.
+         */
+        LatencyStats stepLatency = new LatencyStats();
+        int stride = Math.max(1, catalogSize / MAX_STEPS_PER_FLING);
+        for (int fling = 0; fling < FLINGS; fling++) {
+            boolean forward = (fling % 2) == 0;
+            for (int step = 0; step * stride < catalogSize; step++) {
+                int position = step * stride;
+                if (!forward) {
+                    position = catalogSize - 1 - position;
+                }
+                long stepTime = SystemClock.uptimeMillis();
+                gallery.setSelection(position);
+                layout(activity, portrait);
+                stepLatency.add(SystemClock.uptimeMillis() - stepTime);
+                if ((step % 50) == 0) {
+                    sampleHeap();
+                }
+            }
+        }
+        report.put("step_p50_ms", stepLatency.getPercentile(50));
+        report.put("step_p90_ms", stepLatency.getPercentile(90));
+        report.put("step_p99_ms", stepLatency.getPercentile(99));
+
+        /*
+         * Rotations, each of which re-inflates the chooser in place. The
+         * resources are updated first, as the system would, so that landscape
+         * layouts and previews are really used.
+         */
+        for (int rotation = 0; rotation < ROTATIONS; rotation++) {
+            probe.add(gallery);
+            portrait = !portrait;
+            Configuration config = new Configuration(activity.getResources().getConfiguration());
+            config.orientation = portrait ? Configuration.ORIENTATION_PORTRAIT :
+                    Configuration.ORIENTATION_LANDSCAPE;
+            activity.getResources().updateConfiguration(config, null);
+            activity.onConfigurationChanged(config);
+            detachSelectionListener(activity);
+            layout(activity, portrait);
+            gallery = (Gallery)activity.findViewById(R.id.gallery);
+            assertFalse("Chooser finished on rotation", isFinishCalled());
+            sampleHeap();
+        }
+        probe.add(gallery);
+
+        /*
+         * Apply cycles. Change requests are captured by the harness context;
+         * pausing and resuming dismisses the progress dialog between cycles.
+         */
+        LatencyStats applyLatency = new LatencyStats();
+        View apply = activity.findViewById(R.id.apply);
+        for (int cycle = 0; cycle < APPLY_CYCLES; cycle++) {
+            gallery.setSelection((cycle * 7 + 1) % catalogSize);
+            layout(activity, portrait);
+            long applyTime = SystemClock.uptimeMillis();
+            apply.performClick();
+            applyLatency.add(SystemClock.uptimeMillis() - applyTime);
+            getInstrumentation().callActivityOnPause(activity);
+            getInstrumentation().callActivityOnResume(activity);
+            sampleHeap();
+        }
+        assertEquals(APPLY_CYCLES, context.getSentIntents().size());
+        report.put("apply_p90_ms", applyLatency.getPercentile(90));
+
+        getInstrumentation().callActivityOnPause(activity);
+        getInstrumentation().callActivityOnStop(activity);
+        getInstrumentation().callActivityOnDestroy(activity);
+        assertTrue("Receivers left registered", context.getRegisteredReceivers().isEmpty());
+        setActivity(null);
+
+        return probe;
+    }
+
+    /**
+     * Views of an activity under ActivityUnitTestCase are never attached to a
+     * window, so anything they post during layout, such as the gallery's
+     * selection notifier, waits on the thread's pending run queue
+     * indefinitely and would be reported as a leaked Gallery. The selection
+     * listener only updates the position and name labels, so it is removed.
+     */
+    private void detachSelectionListener(HeadlessThemeChooser activity) {
+        ((Gallery)activity.findViewById(R.id.gallery)).setOnItemSelectedListener(null);
+    }
+
+    private void layout(HeadlessThemeChooser activity, boolean portrait) {
+        int width = portrait ? SCREEN_SHORT_SIDE : SCREEN_LONG_SIDE;
+        int height = portrait ? SCREEN_LONG_SIDE : SCREEN_SHORT_SIDE;
+        View decor = activity.getWindow().getDecorView();
+        decor.measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+        decor.layout(0, 0, width, height);
+    }
+
+    /**
+     * Preview bitmaps live on the native heap, so both heaps are counted.
+     */
+    private void sampleHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long usedKb = (runtime.totalMemory() - runtime.freeMemory()
+                + Debug.getNativeHeapAllocatedSize()) / 1024;
+        mPeakHeapKb = Math.max(mPeakHeapKb, usedKb);
+    }
+
+    private static void forceGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            System.runFinalization();
+            Thread.sleep(100);
+        }
+    }
+
+    /**
+     * Weak references to every Gallery and adapter created during a run. Once
+     * the chooser is destroyed, none should remain reachable.
+     */
+    private static class LeakProbe {
+        private final List<WeakReference<Gallery>> mGalleries =
+                new ArrayList<WeakReference<Gallery>>();
+        private final List<WeakReference<SpinnerAdapter>> mAdapters =
+                new ArrayList<WeakReference<SpinnerAdapter>>();
+
+        public void add(Gallery gallery) {
+            mGalleries.add(new WeakReference<Gallery>(gallery));
+        }
+
+        public void add(SpinnerAdapter adapter) {
+            mAdapters.add(new WeakReference<SpinnerAdapter>(adapter));
+        }
+
+        public int countLiveGalleries() {
+            return countLive(mGalleries);
+        }
+
+        public int countLiveAdapters() {
+            return countLive(mAdapters);
+        }
+
+        private static int countLive(List<? extends WeakReference<?>> refs) {
+            int live = 0;
+            for (WeakReference<?> ref : refs) {
+                if (ref.get() != null) {
+                    live++;
+                }
+            }
+            return live;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.tmobile.themechooser.tests;
+
+import com.tmobile.themechooser.ComponentChangeDetector;
+import com.tmobile.themechooser.ComponentChangeDetector.Components;
+
+import android.content.Context;
+import android.media.RingtoneManager;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+
+/**
+ * Tests for the decision between a style-only and a full theme change.
+ */
+public class ComponentChangeDetectorTest extends AndroidTestCase {
+    private static final String PACKAGE = "com.tmobile.theme.test";
+
+    private static final Uri RINGTONE = Uri.parse("content://media/internal/audio/media/1");
+    private static final Uri OTHER_RINGTONE = Uri.parse("content://media/internal/audio/media/2");
+    private static final Uri NOTIFICATION = Uri.parse("content://media/internal/audio/media/3");
+    private static final Uri WALLPAPER = Uri.parse("content://wallpapers/1");
+
+    private FakeSettingsDetector mDetector;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDetector = new FakeSettingsDetector(getContext());
+        mDetector.ringtone = RINGTONE;
+        mDetector.notificationRingtone = NOTIFICATION;
+    }
+
+    private static Components theme(String themeId, Uri wallpaper, Uri ringtone,
+            Uri notificationRingtone) {
+        return new Components(PACKAGE, themeId, wallpaper, ringtone, notificationRingtone);
+    }
+
+    public void testNoChangeSendsStyleOnly() {
+        Components current = theme("Current", null, RINGTONE, NOTIFICATION);
+        Components target = theme("Target", null, RINGTONE, NOTIFICATION);
+
+        assertFalse(mDetector.hasChanges(target, current, PACKAGE, "Current"));
+    }
+
+    public void testNoRingtonesSendsStyleOnly() {
+        Components current = theme("Current", null, null, null);
+        Components target = theme("Target", null, null, null);
+
+        assertFalse(mDetector.hasChanges(target, current, PACKAGE, "Current"));
+    }
+
+    public void testRingtoneDiffersBetweenThemes() {
+        Components current = theme("Current", null, RINGTONE, NOTIFICATION);
+        Components target = theme("Target", null, OTHER_RINGTONE, NOTIFICATION);
+
+        assertTrue(mDetector.hasChanges(target, current, PACKAGE, "Current"));
+    }
+
+    public void testNotificationRingtoneDiffersBetweenThemes() {
+        Components current = theme("Current", null, RINGTONE, NOTIFICATION);
+        Components target = theme("Target", null, RINGTONE, null);
+
+        assertTrue(mDetector.hasChanges(target, current, PACKAGE, "Current"));
+    }
+
+    public void testRingtoneChangedInSettings() {
+        mDetector.ringtone = OTHER_RINGTONE;
+        Components current = theme("Current", null, RINGTONE, NOTIFICATION);
+        Components target = theme("Target", null, RINGTONE, NOTIFICATION);
+
+        assertTrue(mDetector.hasChanges(target, current, PACKAGE, "Current"));
+    }
+
+    public void testMarkedThemeDoesNotMatchConfiguration() {
+        Components current = theme("Current", null, RINGTONE, NOTIFICATION);
+        Components target = theme("Target", null, RINGTONE, NOTIFICATION);
+
+        assertTrue(mDetector.hasChanges(target, current, PACKAGE, "Other"));
+        assertTrue(mDetector.hasChanges(target, current, null, null));
+    }
+
+    public void testNoMarkedTheme() {
+        Components target = theme("Target", null, RINGTONE, NOTIFICATION);
+
+        assertTrue(mDetector.hasChanges(target, null, PACKAGE, "Current"));
+    }
+
+    public void testReapplyingCurrentTheme() {
+        Components current = theme("Current", null, RINGTONE, NOTIFICATION);
+
+        assertTrue(mDetector.hasChanges(current, current, PACKAGE, "Current"));
+    }
+
+    public void testAnyWallpaperTakesFullPath() {
+        Components current = theme("Current", WALLPAPER, RINGTONE, NOTIFICATION);
+        Components target = theme("Target", WALLPAPER, RINGTONE, NOTIFICATION);
+
+        assertTrue(mDetector.hasChanges(target, current, PACKAGE, "Current"));
+    }
+
+    private static class FakeSettingsDetector extends ComponentChangeDetector {
+        public Uri ringtone;
+        public Uri notificationRingtone;
+
+        public FakeSettingsDetector(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected Uri getDefaultRingtoneUri(int type) {
+            return (type == RingtoneManager.TYPE_RINGTONE) ? ringtone : notificationRingtone;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.tmobile.themechooser.tests;
+
+import com.tmobile.themes.provider.Themes;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.test.mock.MockContentResolver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Activity context for the chooser under test. Routes Themes provider
+ * queries to a {@link SyntheticThemeProvider} and captures, rather than
+ * delivers, broadcasts and receiver registrations so that apply cycles never
+ * reach the real theme manager.
+ */
+public class HarnessContext extends ContextWrapper {
+    private final MockContentResolver mResolver = new MockContentResolver();
+
+    private final List<Intent> mSentIntents = new ArrayList<Intent>();
+    private final List<BroadcastReceiver> mReceivers = new ArrayList<BroadcastReceiver>();
+
+    public HarnessContext(Context base, SyntheticThemeProvider provider) {
+        super(base);
+        provider.attachInfo(this, null);
+        mResolver.addProvider(Themes.AUTHORITY, provider);
+    }
+
+    @Override
+    public ContentResolver getContentResolver() {
+        return mResolver;
+    }
+
+    /**
+     * @return intents sent through any broadcast or service call, which is
+     *         how theme change requests leave the chooser
+     */
+    public List<Intent> getSentIntents() {
+        return mSentIntents;
+    }
+
+    public List<BroadcastReceiver> getRegisteredReceivers() {
+        return mReceivers;
+    }
+
+    @Override
+    public void sendBroadcast(Intent intent) {
+        mSentIntents.add(intent);
+    }
+
+    @Override
+    public void sendBroadcast(Intent intent, String receiverPermission) {
+        mSentIntents.add(intent);
+    }
+
+    @Override
+    public void sendOrderedBroadcast(Intent intent, String receiverPermission) {
+        mSentIntents.add(intent);
+    }
+
+    @Override
+    public ComponentName startService(Intent service) {
+        mSentIntents.add(service);
+        return null;
+    }
+
+    @Override
+    public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+        mReceivers.add(receiver);
+        return null;
+    }
+
+    @Override
+    public void unregisterReceiver(BroadcastReceiver receiver) {
+        if (!mReceivers.remove(receiver)) {
+            throw new IllegalArgumentException("Receiver not registered: " + receiver);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.tmobile.themechooser.tests;
+
+import com.tmobile.themechooser.ThemeChooser;
+
+import android.app.Dialog;
+import android.app.ProgressDialog;
+import android.content.Context;
+
+/**
+ * ThemeChooser whose dialogs are never attached to a window. Activities
+ * started by {@link android.test.ActivityUnitTestCase} have no window token,
+ * so showing the real progress dialog during an apply would fail.
+ */
+public class HeadlessThemeChooser extends ThemeChooser {
+    @Override
+    protected Dialog onCreateDialog(int id) {
+        return new HeadlessDialog(this);
+    }
+
+    private static class HeadlessDialog extends ProgressDialog {
+        public HeadlessDialog(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void show() {
+        }
+    }
+}
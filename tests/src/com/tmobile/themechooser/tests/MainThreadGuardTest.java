@@ -0,0 +1,162 @@
+package com.tmobile.themechooser.tests;
+
+import com.tmobile.themechooser.GuardedContentResolver;
+import com.tmobile.themechooser.MainThreadGuard;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.test.mock.MockContentResolver;
+
+/**
+ * Tests for {@link MainThreadGuard} recording and failure behaviour.
+ */
+public class MainThreadGuardTest extends InstrumentationTestCase {
+    private static final String AUTHORITY = "com.tmobile.themechooser.tests.guard";
+    private static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/items");
+
+    private GuardedContentResolver mResolver;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        MainThreadGuard.clearViolations();
+        MainThreadGuard.setEnabled(true);
+
+        MockContentResolver base = new MockContentResolver();
+        EmptyProvider provider = new EmptyProvider();
+        provider.attachInfo(getInstrumentation().getTargetContext(), null);
+        base.addProvider(AUTHORITY, provider);
+        mResolver = new GuardedContentResolver(getInstrumentation().getTargetContext(), base);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        MainThreadGuard.setFailOnViolation(false);
+        MainThreadGuard.setEnabled(false);
+        MainThreadGuard.clearViolations();
+        super.tearDown();
+    }
+
+    @UiThreadTest
+    public void testRecordsNewOperationWithCallSite() {
+        long guard = MainThreadGuard.begin();
+        MainThreadGuard.end(guard, "test operation");
+
+        assertEquals(1, MainThreadGuard.getViolations().size());
+        MainThreadGuard.Violation violation = MainThreadGuard.getViolations().get(0);
+        assertEquals("test operation", violation.operation);
+        assertEquals("MainThreadGuardTest.testRecordsNewOperationWithCallSite: test operation",
+                violation.getKey());
+    }
+
+    @UiThreadTest
+    public void testKnownOperationNotRecorded() {
+        MainThreadGuard.allow("known operation");
+        long guard = MainThreadGuard.begin();
+        MainThreadGuard.end(guard, "known operation");
+
+        assertTrue(MainThreadGuard.getViolations().isEmpty());
+    }
+
+    public void testIgnoresBackgroundThread() {
+        long guard = MainThreadGuard.begin();
+        MainThreadGuard.end(guard, "test operation");
+
+        assertTrue(MainThreadGuard.getViolations().isEmpty());
+    }
+
+    @UiThreadTest
+    public void testDisabledAtRuntime() {
+        MainThreadGuard.setEnabled(false);
+        long guard = MainThreadGuard.begin();
+        MainThreadGuard.end(guard, "test operation");
+        mResolver.query(CONTENT_URI, null, null, null, null).close();
+
+        assertTrue(MainThreadGuard.getViolations().isEmpty());
+    }
+
+    @UiThreadTest
+    public void testFailsOnlyOnNewOperations() {
+        MainThreadGuard.setFailOnViolation(true);
+        MainThreadGuard.allow("known operation");
+
+        long guard = MainThreadGuard.begin();
+        MainThreadGuard.end(guard, "known operation");
+
+        guard = MainThreadGuard.begin();
+        try {
+            MainThreadGuard.end(guard, "new operation");
+            fail("Expected IllegalStateException for new operation");
+        } catch (IllegalStateException e) {
+        }
+        assertEquals(1, MainThreadGuard.getViolations().size());
+    }
+
+    @UiThreadTest
+    public void testDetectsUnbracketedProviderAccess() {
+        mResolver.query(CONTENT_URI, null, null, null, null).close();
+
+        assertEquals(1, MainThreadGuard.getViolations().size());
+        assertEquals("MainThreadGuardTest.testDetectsUnbracketedProviderAccess: " +
+                "ContentResolver " + AUTHORITY, MainThreadGuard.getViolations().get(0).getKey());
+    }
+
+    @UiThreadTest
+    public void testBracketedProviderAccessAttributedToBracket() {
+        MainThreadGuard.allow("known query");
+        long guard = MainThreadGuard.begin();
+        mResolver.query(CONTENT_URI, null, null, null, null).close();
+        MainThreadGuard.end(guard, "known query");
+
+        assertTrue(MainThreadGuard.getViolations().isEmpty());
+    }
+
+    @UiThreadTest
+    public void testFailsOnUnbracketedProviderAccess() {
+        MainThreadGuard.setFailOnViolation(true);
+        try {
+            mResolver.query(CONTENT_URI, null, null, null, null);
+            fail("Expected IllegalStateException for provider access");
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    private static class EmptyProvider extends ContentProvider {
+        @Override
+        public boolean onCreate() {
+            return true;
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection,
+                String[] selectionArgs, String sortOrder) {
+            return new MatrixCursor(new String[] { "_id" });
+        }
+
+        @Override
+        public String getType(Uri uri) {
+            return null;
+        }
+
+        @Override
+        public Uri insert(Uri uri, ContentValues values) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int update(Uri uri, ContentValues values, String selection,
+                String[] selectionArgs) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int delete(Uri uri, String selection, String[] selectionArgs) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
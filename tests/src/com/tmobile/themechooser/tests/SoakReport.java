@@ -0,0 +1,119 @@
+package com.tmobile.themechooser.tests;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Measurements from one soak run, compared against baselines keyed by
+ * <code>&lt;metric&gt;.&lt;catalog size&gt;</code>.
+ * <p>
+ * Baselines checked in to the test package as
+ * <code>assets/baselines.properties</code> take precedence. Any metric
+ * without one is compared against the value recorded by an earlier run on
+ * the same device, in the target's <code>files/soak-baselines.properties</code>;
+ * if there is none yet, the measurement is recorded there and passes. To
+ * check in baselines, pull that file from a reference device and note the
+ * device in the commit.
+ */
+public class SoakReport {
+    private static final String TAG = "ThemeChooserSoak";
+
+    private static final String CHECKED_IN_BASELINES = "baselines.properties";
+    private static final String RECORDED_BASELINES = "soak-baselines.properties";
+
+    /**
+     * Fraction by which a timing or heap measurement may exceed its baseline.
+     * Leak counts (metrics named <code>leaked_*</code>) may not exceed theirs
+     * at all.
+     */
+    private static final double TOLERANCE = 0.5;
+
+    private final int mCatalogSize;
+    private final Map<String, Long> mMetrics = new LinkedHashMap<String, Long>();
+
+    public SoakReport(int catalogSize) {
+        mCatalogSize = catalogSize;
+    }
+
+    public void put(String metric, long value) {
+        mMetrics.put(metric, value);
+    }
+
+    /**
+     * Log every measurement and compare it with its baseline, recording
+     * measurements which have no baseline yet.
+     *
+     * @param testContext - Context of the test package, holding any checked
+     *            in baselines
+     * @param targetContext - Context of the chooser, where recorded baselines
+     *            are kept
+     * @return descriptions of each regression found, empty if none
+     */
+    public List<String> compareWithBaselines(Context testContext, Context targetContext)
+            throws IOException {
+        Properties checkedIn = new Properties();
+        try {
+            load(checkedIn, testContext.getAssets().open(CHECKED_IN_BASELINES));
+        } catch (FileNotFoundException e) {
+        }
+        File recordedFile = new File(targetContext.getFilesDir(), RECORDED_BASELINES);
+        Properties recorded = new Properties();
+        if (recordedFile.exists()) {
+            load(recorded, new FileInputStream(recordedFile));
+        }
+
+        List<String> regressions = new ArrayList<String>();
+        boolean recordedNew = false;
+        for (Map.Entry<String, Long> metric : mMetrics.entrySet()) {
+            String key = metric.getKey() + "." + mCatalogSize;
+            long value = metric.getValue();
+            String baselineValue = checkedIn.getProperty(key, recorded.getProperty(key));
+            if (baselineValue == null) {
+                Log.i(TAG, "Soak report: " + key + " = " + value + " (recorded as baseline)");
+                recorded.setProperty(key, String.valueOf(value));
+                recordedNew = true;
+                continue;
+            }
+
+            long baseline = Long.parseLong(baselineValue.trim());
+            Log.i(TAG, "Soak report: " + key + " = " + value + " (baseline " + baseline + ")");
+            double limit = metric.getKey().startsWith("leaked_") ? baseline :
+                    baseline * (1 + TOLERANCE);
+            if (value > limit) {
+                regressions.add(key + " = " + value + " exceeds baseline " + baseline);
+            }
+        }
+
+        if (recordedNew) {
+            OutputStream out = new FileOutputStream(recordedFile);
+            try {
+                recorded.store(out, "Recorded by CatalogSoakTest");
+            } finally {
+                out.close();
+            }
+            Log.i(TAG, "Recorded new baselines in " + recordedFile);
+        }
+        return regressions;
+    }
+
+    private static void load(Properties properties, InputStream in) throws IOException {
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+    }
+}
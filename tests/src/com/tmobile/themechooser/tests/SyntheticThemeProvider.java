@@ -0,0 +1,197 @@
+package com.tmobile.themechooser.tests;
+
+import com.tmobile.themes.provider.Themes;
+import com.tmobile.themes.provider.Themes.ThemeColumns;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Local stand-in for the Themes provider which serves a catalog of
+ * generated themes. Every theme carries its own wallpaper and preview URI;
+ * previews are real PNGs of a configurable size, so binding them in the
+ * chooser costs a genuine decode.
+ * <p>
+ * Only the catalog listing and preview files are supported; the provider is
+ * read-only.
+ */
+public class SyntheticThemeProvider extends ContentProvider {
+    static final String THEME_PACKAGE = "com.tmobile.themechooser.synthetic";
+
+    /**
+     * Number of distinct preview images generated. Themes share them
+     * round-robin to keep setup time and disk use bounded for large catalogs.
+     */
+    private static final int PREVIEW_VARIANTS = 8;
+
+    private static final String[] DEFAULT_PROJECTION = new String[] {
+        ThemeColumns._ID,
+        ThemeColumns.THEME_ID,
+        ThemeColumns.THEME_PACKAGE,
+        ThemeColumns.NAME,
+        ThemeColumns.STYLE_NAME,
+        ThemeColumns.AUTHOR,
+        ThemeColumns.IS_APPLIED,
+        ThemeColumns.WALLPAPER_URI,
+        ThemeColumns.RINGTONE_URI,
+        ThemeColumns.NOTIFICATION_RINGTONE_URI,
+        ThemeColumns.PREVIEW_URI,
+        ThemeColumns.HAS_HOST_DENSITY,
+        ThemeColumns.HAS_THEME_PACKAGE_SCOPE,
+    };
+
+    private final int mThemeCount;
+    private final int mPreviewWidth;
+    private final int mPreviewHeight;
+
+    private File[] mPreviews;
+
+    /**
+     * @param themeCount - Number of themes in the catalog
+     * @param previewWidth - Width of each generated preview, in pixels
+     * @param previewHeight - Height of each generated preview, in pixels
+     */
+    public SyntheticThemeProvider(int themeCount, int previewWidth, int previewHeight) {
+        mThemeCount = themeCount;
+        mPreviewWidth = previewWidth;
+        mPreviewHeight = previewHeight;
+    }
+
+    @Override
+    public boolean onCreate() {
+        mPreviews = new File[PREVIEW_VARIANTS];
+        for (int i = 0; i < PREVIEW_VARIANTS; i++) {
+            mPreviews[i] = new File(getContext().getCacheDir(), "synthetic-preview-" +
+                    mPreviewWidth + "x" + mPreviewHeight + "-" + i + ".png");
+            if (!mPreviews[i].exists()) {
+                writePreview(mPreviews[i], Color.HSVToColor(
+                        new float[] { 360f * i / PREVIEW_VARIANTS, 0.6f, 0.9f }));
+            }
+        }
+        return true;
+    }
+
+    private void writePreview(File file, int color) {
+        Bitmap bitmap = Bitmap.createBitmap(mPreviewWidth, mPreviewHeight,
+                Bitmap.Config.ARGB_8888);
+        new Canvas(bitmap).drawColor(color);
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            bitmap.recycle();
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    static Uri getPreviewUri(int position) {
+        return Uri.parse("content://" + Themes.AUTHORITY + "/synthetic_preview/" + position);
+    }
+
+    static Uri getWallpaperUri(int position) {
+        return Uri.parse("content://" + Themes.AUTHORITY + "/synthetic_wallpaper/" + position);
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+            String sortOrder) {
+        if (projection == null) {
+            projection = DEFAULT_PROJECTION;
+        }
+        boolean appliedOnly = selection != null && selection.contains(ThemeColumns.IS_APPLIED);
+        int count = appliedOnly ? 1 : mThemeCount;
+
+        MatrixCursor cursor = new MatrixCursor(projection, count);
+        Object[] row = new Object[projection.length];
+        for (int position = 0; position < count; position++) {
+            for (int i = 0; i < projection.length; i++) {
+                row[i] = getColumnValue(projection[i], position);
+            }
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    /**
+     * The first theme in the catalog is reported as applied. Columns not
+     * known to this provider read as null.
+     */
+    private Object getColumnValue(String column, int position) {
+        if (ThemeColumns._ID.equals(column)) {
+            return position + 1;
+        } else if (ThemeColumns.THEME_ID.equals(column)) {
+            return "Synthetic" + position;
+        } else if (ThemeColumns.THEME_PACKAGE.equals(column)) {
+            return THEME_PACKAGE;
+        } else if (ThemeColumns.NAME.equals(column)) {
+            return "Synthetic theme " + position;
+        } else if (ThemeColumns.STYLE_NAME.equals(column)) {
+            return "Synthetic style " + position;
+        } else if (ThemeColumns.AUTHOR.equals(column)) {
+            return "ThemeChooser tests";
+        } else if (ThemeColumns.IS_APPLIED.equals(column)) {
+            return position == 0 ? 1 : 0;
+        } else if (ThemeColumns.WALLPAPER_URI.equals(column)) {
+            return getWallpaperUri(position).toString();
+        } else if (ThemeColumns.PREVIEW_URI.equals(column)) {
+            return getPreviewUri(position).toString();
+        } else if (ThemeColumns.HAS_HOST_DENSITY.equals(column) ||
+                ThemeColumns.HAS_THEME_PACKAGE_SCOPE.equals(column)) {
+            return 1;
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+        int position;
+        try {
+            position = Integer.parseInt(uri.getLastPathSegment());
+        } catch (NumberFormatException e) {
+            position = 0;
+        }
+        return ParcelFileDescriptor.open(mPreviews[position % PREVIEW_VARIANTS],
+                ParcelFileDescriptor.MODE_READ_ONLY);
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return ThemeColumns.CONTENT_TYPE;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException();
+    }
+}